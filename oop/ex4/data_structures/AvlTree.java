@@ -46,7 +46,10 @@ public class AvlTree extends BinaryTree {
     @Override
     public boolean add(int newValue) {
         if (super.add(newValue)) {
-            addingAdjustHeight(this.lastAddedBinaryNode);
+            // a revived tombstone does not change the tree's structure
+            if (this.lastAddedBinaryNode != null) {
+                addingAdjustHeight(this.lastAddedBinaryNode);
+            }
             return true;
         }
         return false;
@@ -61,7 +64,10 @@ public class AvlTree extends BinaryTree {
     @Override
     public boolean delete(int toDelete) {
         if (super.delete(toDelete)) {
-            deleteAdjustHeight(this.lastDeletedBinaryNode);
+            // a lazy deletion does not change the tree's structure
+            if (this.lastDeletedBinaryNode != null) {
+                deleteAdjustHeight(this.lastDeletedBinaryNode);
+            }
             return true;
         }
         return false;
@@ -37,6 +37,11 @@ class BinaryNode {
      */
     private int height;
 
+    /**
+     * true if the node's value was lazily deleted from the tree, but the node was not removed yet.
+     */
+    private boolean tombstone;
+
     /**
      * Constructor
      *
@@ -140,6 +145,22 @@ class BinaryNode {
         this.data = data;
     }
 
+    /**
+     * @return true if the node's value was lazily deleted
+     */
+    boolean isTombstone() {
+        return tombstone;
+    }
+
+    /**
+     * marks or unmarks the node as lazily deleted
+     *
+     * @param tombstone true if the node's value is deleted
+     */
+    void setTombstone(boolean tombstone) {
+        this.tombstone = tombstone;
+    }
+
     /**
      * finds if node is a left son of its father, a right son of his father or a root
      *
@@ -1,5 +1,6 @@
 package oop.ex4.data_structures;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -14,6 +15,16 @@ public class BinaryTree implements Iterable<Integer> {
 
     private static int NOT_EXIST = -1;
 
+    /**
+     * default ratio of tombstones out of all the tree's nodes above which the tree is compacted
+     */
+    public static final double DEFAULT_COMPACTION_THRESHOLD = 0.5;
+
+    /**
+     * compaction threshold that turns automatic compaction off - tombstones are removed only by calling compact
+     */
+    public static final double MANUAL_COMPACTION = 1;
+
     /**
      * tree's root
      */
@@ -34,6 +45,21 @@ public class BinaryTree implements Iterable<Integer> {
      */
     private int size;
 
+    /**
+     * true if deleted nodes are only marked as tombstones, and removed later by compaction
+     */
+    private boolean lazyDeletion;
+
+    /**
+     * number of tombstones in the tree
+     */
+    private int tombstones;
+
+    /**
+     * ratio of tombstones out of all the tree's nodes above which the tree is compacted
+     */
+    private double compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+
 
     /**
      * The default constructor.
@@ -83,8 +109,14 @@ public class BinaryTree implements Iterable<Integer> {
      * @return true if the value to add is not already in the tree and it was successfully added, false otherwise.
      */
     public boolean add(int newValue) {
-        if (contains(newValue) != NOT_EXIST) {
-            return false;
+        BinaryNode existing = findElement(root, newValue);
+        if (existing != null) {
+            if (!existing.isTombstone()) {
+                return false;
+            }
+            existing.setTombstone(false);
+            tombstones--;
+            lastAddedBinaryNode = null;
         } else if (root == null) {
             root = new BinaryNode(null, newValue);
             lastAddedBinaryNode = root;
@@ -103,7 +135,7 @@ public class BinaryTree implements Iterable<Integer> {
      */
     public int contains(int searchVal) {
         BinaryNode result = findElement(root, searchVal);
-        if (result == null) {
+        if ((result == null) || result.isTombstone()) {
             return NOT_EXIST;
         } else {
             int depth = 0;
@@ -115,6 +147,128 @@ public class BinaryTree implements Iterable<Integer> {
         }
     }
 
+    /**
+     * Does tree contain all the given values.
+     *
+     * @param searchVals values to search for
+     * @return true iff every value is found in the tree
+     */
+    public boolean containsAll(int[] searchVals) {
+        boolean[] found = new boolean[searchVals.length];
+        lookupBatch(searchVals, found);
+        for (boolean isFound : found) {
+            if (!isFound) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Looks up a batch of values at once. the values are sorted and answered in a single descent of the tree, so
+     * the paths shared by several values are walked only once.
+     *
+     * @param searchVals values to search for
+     * @param found      output array of the same length - found[i] is set to true iff searchVals[i] is in the tree.
+     */
+    public void lookupBatch(int[] searchVals, boolean[] found) {
+        if (found.length != searchVals.length) {
+            throw new IllegalArgumentException();
+        }
+        Arrays.fill(found, false);
+        long[] sortedVals = sortWithIndices(searchVals);
+        batchHelper(root, 0, sortedVals, 0, sortedVals.length, null, found);
+    }
+
+    /**
+     * Looks up a batch of values at once, like contains. the values are sorted and answered in a single descent of
+     * the tree, so the paths shared by several values are walked only once.
+     *
+     * @param searchVals values to search for
+     * @param depths     output array of the same length - depths[i] is set to the depth of searchVals[i] node (where
+     *                   0 is the root), or -1 if it is not in the tree.
+     */
+    public void lookupBatch(int[] searchVals, int[] depths) {
+        if (depths.length != searchVals.length) {
+            throw new IllegalArgumentException();
+        }
+        Arrays.fill(depths, NOT_EXIST);
+        long[] sortedVals = sortWithIndices(searchVals);
+        batchHelper(root, 0, sortedVals, 0, sortedVals.length, depths, null);
+    }
+
+    /**
+     * sorts values while keeping their original positions - each value is packed with its index into a long, with
+     * the value in the high half, so sorting the longs sorts by value.
+     *
+     * @param values values to sort
+     * @return the packed values, in ascending order
+     */
+    private static long[] sortWithIndices(int[] values) {
+        long[] packed = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            packed[i] = ((long) values[i] << Integer.SIZE) | i;
+        }
+        Arrays.sort(packed);
+        return packed;
+    }
+
+    /**
+     * batch lookup helper function - answers the given range of sorted values in a subtree, splitting the range
+     * between the subtree root and its sons.
+     *
+     * @param subTreeRoot current subtree to search in
+     * @param depth       depth of the subtree root
+     * @param sortedVals  values packed with their indices, in ascending order
+     * @param from        first value of the range (inclusive)
+     * @param to          last value of the range (exclusive)
+     * @param depths      depths output array, null if not needed
+     * @param found       found output array, null if not needed
+     */
+    private void batchHelper(BinaryNode subTreeRoot, int depth, long[] sortedVals, int from, int to, int[] depths,
+                             boolean[] found) {
+        if ((subTreeRoot == null) || (from == to)) {
+            return;
+        }
+        int data = subTreeRoot.getData();
+        int lower = firstAtLeast(sortedVals, from, to, data);
+        int upper = lower;
+        while ((upper < to) && ((int) (sortedVals[upper] >> Integer.SIZE) == data)) {
+            if (!subTreeRoot.isTombstone()) {
+                int index = (int) sortedVals[upper];
+                if (depths != null) {
+                    depths[index] = depth;
+                } else {
+                    found[index] = true;
+                }
+            }
+            upper++;
+        }
+        batchHelper(subTreeRoot.getLeftSon(), depth + 1, sortedVals, from, lower, depths, found);
+        batchHelper(subTreeRoot.getRightSon(), depth + 1, sortedVals, upper, to, depths, found);
+    }
+
+    /**
+     * binary search for the first packed value in a range that is not smaller than a given value
+     *
+     * @param sortedVals values packed with their indices, in ascending order
+     * @param from       first index of the range (inclusive)
+     * @param to         last index of the range (exclusive)
+     * @param value      value to search for
+     * @return index of the first packed value not smaller than value, to if there is none
+     */
+    private static int firstAtLeast(long[] sortedVals, int from, int to, int value) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if ((int) (sortedVals[middle] >> Integer.SIZE) < value) {
+                from = middle + 1;
+            } else {
+                to = middle;
+            }
+        }
+        return from;
+    }
+
     /**
      * Returns an iterator for the Avl Tree. The returned iterator iterates over the tree nodes in an ascending order,
      * and does NOT implement the remove() method.
@@ -144,6 +298,9 @@ public class BinaryTree implements Iterable<Integer> {
                 } else {
                     current = successor(current);
                 }
+                while (current.isTombstone()) {
+                    current = successor(current);
+                }
                 iterationIndex++;
                 return current.getData();
             }
@@ -163,10 +320,20 @@ public class BinaryTree implements Iterable<Integer> {
      * @return true if the given value was found and deleted, false otherwise
      */
     public boolean delete(int toDelete) {
-        if (contains(toDelete) == NOT_EXIST) {
+        BinaryNode delete = findElement(root, toDelete);
+        if ((delete == null) || delete.isTombstone()) {
             return false;
         }
-        BinaryNode delete = findElement(root, toDelete);
+        if (lazyDeletion) {
+            delete.setTombstone(true);
+            tombstones++;
+            size--;
+            lastDeletedBinaryNode = null;
+            if (tombstones > compactionThreshold * (size + tombstones)) {
+                compact();
+            }
+            return true;
+        }
         BinaryNode deleteRightSon = delete.getRightSon();
         BinaryNode deleteLeftSon = delete.getLeftSon();
         BinaryNode father = delete.getFather();
@@ -184,6 +351,125 @@ public class BinaryTree implements Iterable<Integer> {
         return true;
     }
 
+    /**
+     * Turns lazy deletion on or off. in lazy deletion mode a deleted node is only marked as a tombstone, without
+     * restructuring the tree, and the tombstones are removed by compaction once their ratio passes the compaction
+     * threshold. turning lazy deletion off compacts the tree.
+     *
+     * @param lazyDeletion true to delete lazily, false to remove nodes immediately
+     */
+    public void setLazyDeletion(boolean lazyDeletion) {
+        if (!lazyDeletion) {
+            compact();
+        }
+        this.lazyDeletion = lazyDeletion;
+    }
+
+    /**
+     * Sets the ratio of tombstones out of all the tree's nodes above which the tree is compacted. the automatic
+     * compaction runs inside the delete that passes the threshold, so that single delete pays a linear-time rebuild,
+     * while the rebuilds cost amortized O(1/threshold) per delete. callers that can not afford such a spike should set
+     * MANUAL_COMPACTION, and call compact at a convenient time.
+     *
+     * @param compactionThreshold a ratio larger than 0 and at most 1, where MANUAL_COMPACTION (1) means the tree is
+     *                            never compacted automatically.
+     */
+    public void setCompactionThreshold(double compactionThreshold) {
+        if ((compactionThreshold <= 0) || (compactionThreshold > 1)) {
+            throw new IllegalArgumentException();
+        }
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Removes all the tombstones from the tree, rebuilding it as a balanced tree in linear time. the whole rebuild
+     * happens in this call - it is not done incrementally.
+     */
+    public void compact() {
+        if (tombstones == 0) {
+            return;
+        }
+        buildFromSorted(valuesInRange(Integer.MIN_VALUE, Integer.MAX_VALUE));
+    }
+
+    /**
+     * replaces the tree's content with the given values, building a perfectly balanced tree in linear time. node
+     * heights are set as well, so the result is also a valid avl tree.
+     *
+     * @param sorted strictly ascending values to build the tree from
+     */
+    void buildFromSorted(int[] sorted) {
+        root = buildHelper(null, sorted, 0, sorted.length - 1);
+        size = sorted.length;
+        tombstones = 0;
+        lastAddedBinaryNode = null;
+        lastDeletedBinaryNode = null;
+    }
+
+    /**
+     * build helper function - builds the subtree of the given range, with its middle value as the subtree root
+     *
+     * @param father father of the subtree root, null if it is the tree's root
+     * @param sorted strictly ascending values to build the tree from
+     * @param low    first index of the range (inclusive)
+     * @param high   last index of the range (inclusive)
+     * @return the subtree root, null if the range is empty
+     */
+    private BinaryNode buildHelper(BinaryNode father, int[] sorted, int low, int high) {
+        if (low > high) {
+            return null;
+        }
+        int middle = (low + high) >>> 1;
+        BinaryNode subTreeRoot = new BinaryNode(father, sorted[middle]);
+        BinaryNode leftSon = buildHelper(subTreeRoot, sorted, low, middle - 1);
+        BinaryNode rightSon = buildHelper(subTreeRoot, sorted, middle + 1, high);
+        int leftHeight = (leftSon == null) ? -1 : leftSon.getHeight();
+        int rightHeight = (rightSon == null) ? -1 : rightSon.getHeight();
+        subTreeRoot.setHeight(Math.max(leftHeight, rightHeight) + 1);
+        return subTreeRoot;
+    }
+
+    /**
+     * collects the values of the tree in a given range, visiting only the subtrees that intersect the range.
+     *
+     * @param low  lowest value to collect (inclusive)
+     * @param high highest value to collect (inclusive)
+     * @return the values in the range, in ascending order
+     */
+    int[] valuesInRange(int low, int high) {
+        // the tree's size bounds the number of values in any range, so the buffer never grows
+        int[] values = new int[size];
+        int count = rangeHelper(root, low, high, values, 0);
+        return (count == size) ? values : Arrays.copyOf(values, count);
+    }
+
+    /**
+     * range collection helper function - an in-order traversal that skips subtrees outside the range
+     *
+     * @param subTreeRoot current subtree to collect from
+     * @param low         lowest value to collect (inclusive)
+     * @param high        highest value to collect (inclusive)
+     * @param values      the array to write the values to
+     * @param count       number of values already written
+     * @return number of values written after collecting the subtree
+     */
+    private int rangeHelper(BinaryNode subTreeRoot, int low, int high, int[] values, int count) {
+        if (subTreeRoot == null) {
+            return count;
+        }
+        int data = subTreeRoot.getData();
+        if (data > low) {
+            count = rangeHelper(subTreeRoot.getLeftSon(), low, high, values, count);
+        }
+        if ((low <= data) && (data <= high) && !subTreeRoot.isTombstone()) {
+            values[count++] = data;
+        }
+        if (data < high) {
+            count = rangeHelper(subTreeRoot.getRightSon(), low, high, values, count);
+        }
+        return count;
+    }
+
     /**
      * deals with deleting nodes with one son only.
      *
@@ -0,0 +1,404 @@
+package oop.ex4.data_structures;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class represents an AVL tree whose content survives crashes. every successful add or delete is appended to a
+ * binary write-ahead log, and the sorted content of the tree is periodically written to a checkpoint file, after
+ * which the log is truncated. on construction the tree is recovered from the latest checkpoint in linear time, and
+ * then the log tail is replayed.
+ * log records are committed in groups - a record is only guaranteed to be on disk after the group containing it was
+ * committed (and synced, according to the fsync policy).
+ * if writing the log or a checkpoint fails, the change that caused the write stays in the tree but may not be durable,
+ * and the tree rejects any further change.
+ *
+ * @author lioraryepaz, tal.gliksman
+ */
+
+public class DurableAvlTree extends AvlTree implements Closeable {
+
+    /**
+     * determines when the log file is forced to the disk
+     */
+    public enum FsyncPolicy {
+        /**
+         * sync the log on every group commit - no committed record is lost on a crash.
+         */
+        ALWAYS,
+        /**
+         * sync the log only when the tree is closed - committed records reach the operating system, but may be lost
+         * on a machine crash.
+         */
+        ON_CLOSE,
+        /**
+         * never sync the log - leave it to the operating system.
+         */
+        NEVER
+    }
+
+    /**
+     * default number of records in a commit group
+     */
+    public static final int DEFAULT_GROUP_COMMIT_SIZE = 64;
+
+    /**
+     * default number of log records between two checkpoints
+     */
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 100000;
+
+    private static final String LOG_FILE_NAME = "tree.log";
+
+    private static final String CHECKPOINT_FILE_NAME = "tree.checkpoint";
+
+    private static final String CHECKPOINT_TEMP_FILE_NAME = "tree.checkpoint.tmp";
+
+    private static final byte ADD_RECORD = 1;
+
+    private static final byte DELETE_RECORD = 2;
+
+    /**
+     * size in bytes of a single log record - one byte of record type and the value
+     */
+    private static final int RECORD_SIZE = 5;
+
+    private final File directory;
+
+    private final FsyncPolicy fsyncPolicy;
+
+    private final int groupCommitSize;
+
+    private final int checkpointInterval;
+
+    private FileOutputStream logFile;
+
+    private DataOutputStream log;
+
+    /**
+     * number of records written since the last commit
+     */
+    private int pendingRecords;
+
+    /**
+     * number of records in the log since the last checkpoint
+     */
+    private int loggedRecords;
+
+    /**
+     * nesting depth of delete calls - deleting a node with two sons deletes its successor through a nested call,
+     * which must not be logged.
+     */
+    private int deleteDepth;
+
+    /**
+     * true while the log is replayed on construction, so the replayed changes are not logged again
+     */
+    private boolean replaying;
+
+    /**
+     * the error that failed writing to the log or the checkpoint, null if there was none. once set, the log is
+     * closed and the tree rejects changes.
+     */
+    private IOException failure;
+
+    /**
+     * A constructor that recovers the tree from the given directory with the default durability settings - syncing
+     * on every group commit.
+     *
+     * @param directory the directory holding the log and checkpoint files, created if it does not exist.
+     * @throws IOException if the files could not be read or opened
+     */
+    public DurableAvlTree(File directory) throws IOException {
+        this(directory, FsyncPolicy.ALWAYS, DEFAULT_GROUP_COMMIT_SIZE, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * A constructor that recovers the tree from the given directory.
+     *
+     * @param directory          the directory holding the log and checkpoint files, created if it does not exist.
+     * @param fsyncPolicy        when the log is forced to the disk
+     * @param groupCommitSize    number of records in a commit group (a positive number).
+     * @param checkpointInterval number of log records between two checkpoints (a positive number).
+     * @throws IOException if the files could not be read or opened
+     */
+    public DurableAvlTree(File directory, FsyncPolicy fsyncPolicy, int groupCommitSize, int checkpointInterval)
+            throws IOException {
+        super();
+        if ((directory == null) || (fsyncPolicy == null) || (groupCommitSize < 1) || (checkpointInterval < 1)) {
+            throw new IllegalArgumentException();
+        }
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.groupCommitSize = groupCommitSize;
+        this.checkpointInterval = checkpointInterval;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create directory " + directory);
+        }
+        loadCheckpoint();
+        replaying = true;
+        long validLogLength;
+        try {
+            validLogLength = replayLog();
+        } finally {
+            replaying = false;
+        }
+        logFile = new FileOutputStream(new File(directory, LOG_FILE_NAME), true);
+        // drop a partially written record left by a crash, so new records stay aligned
+        logFile.getChannel().truncate(validLogLength);
+        log = new DataOutputStream(new BufferedOutputStream(logFile));
+    }
+
+    /**
+     * Add a new node with key newValue into the tree, and log the addition.
+     *
+     * @param newValue new value to add to the tree.
+     * @return false iff newValue already exist in the tree
+     */
+    @Override
+    public boolean add(int newValue) {
+        if (replaying) {
+            return super.add(newValue);
+        }
+        ensureOpen();
+        if (super.add(newValue)) {
+            append(ADD_RECORD, newValue);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remove a node from the tree, if it exists, and log the deletion.
+     *
+     * @param toDelete value to delete
+     * @return true iff toDelete found and deleted
+     */
+    @Override
+    public boolean delete(int toDelete) {
+        if (replaying) {
+            return super.delete(toDelete);
+        }
+        ensureOpen();
+        boolean deleted;
+        deleteDepth++;
+        try {
+            deleted = super.delete(toDelete);
+        } finally {
+            deleteDepth--;
+        }
+        if (deleted && (deleteDepth == 0)) {
+            append(DELETE_RECORD, toDelete);
+        }
+        return deleted;
+    }
+
+    /**
+     * commits the current group of log records, syncing the log if the fsync policy requires it.
+     *
+     * @throws IOException if the log could not be written
+     */
+    public void commit() throws IOException {
+        ensureOpen();
+        try {
+            commitLog();
+        } catch (IOException e) {
+            fail(e);
+            throw e;
+        }
+    }
+
+    /**
+     * writes the sorted content of the tree to a new checkpoint file and truncates the log. the checkpoint is always
+     * synced before it replaces the previous one, regardless of the fsync policy.
+     *
+     * @throws IOException if the checkpoint could not be written
+     */
+    public void checkpoint() throws IOException {
+        ensureOpen();
+        try {
+            writeCheckpoint();
+        } catch (IOException e) {
+            fail(e);
+            throw e;
+        }
+    }
+
+    /**
+     * commit process - flushes the log and syncs it if the fsync policy requires it
+     *
+     * @throws IOException if the log could not be written
+     */
+    private void commitLog() throws IOException {
+        log.flush();
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            logFile.getFD().sync();
+        }
+        pendingRecords = 0;
+    }
+
+    /**
+     * checkpoint process - writes the checkpoint file, replaces the previous one with it and truncates the log
+     *
+     * @throws IOException if the checkpoint could not be written
+     */
+    private void writeCheckpoint() throws IOException {
+        log.flush();
+        File tempFile = new File(directory, CHECKPOINT_TEMP_FILE_NAME);
+        try (FileOutputStream checkpointFile = new FileOutputStream(tempFile)) {
+            DataOutputStream checkpoint = new DataOutputStream(new BufferedOutputStream(checkpointFile));
+            checkpoint.writeInt(size());
+            for (int value : this) {
+                checkpoint.writeInt(value);
+            }
+            checkpoint.flush();
+            checkpointFile.getFD().sync();
+        }
+        Files.move(tempFile.toPath(), new File(directory, CHECKPOINT_FILE_NAME).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // the rename must reach the disk before the log is truncated, or a power loss may leave the old checkpoint
+        // with an empty log
+        try (FileChannel directoryChannel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            directoryChannel.force(true);
+        }
+        // a crash before the truncation replays the old log over the new checkpoint, which is harmless - the last
+        // record of every value in the log already matches its state in the checkpoint
+        logFile.getChannel().truncate(0);
+        pendingRecords = 0;
+        loggedRecords = 0;
+    }
+
+    /**
+     * commits the pending log records and closes the log. the tree can not be changed after it was closed.
+     *
+     * @throws IOException if the log could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (log == null) {
+            return;
+        }
+        log.flush();
+        if (fsyncPolicy != FsyncPolicy.NEVER) {
+            logFile.getFD().sync();
+        }
+        log.close();
+        log = null;
+        logFile = null;
+    }
+
+    /**
+     * appends a record to the log, committing and checkpointing when needed. if the writing fails, the tree is
+     * marked as failed, and the change that was just made to the tree may not be durable.
+     *
+     * @param recordType ADD_RECORD or DELETE_RECORD
+     * @param value      the added or deleted value
+     */
+    private void append(byte recordType, int value) {
+        try {
+            log.writeByte(recordType);
+            log.writeInt(value);
+            pendingRecords++;
+            loggedRecords++;
+            if (loggedRecords >= checkpointInterval) {
+                writeCheckpoint();
+            } else if (pendingRecords >= groupCommitSize) {
+                commitLog();
+            }
+        } catch (IOException e) {
+            fail(e);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * marks the tree as failed and closes the log, so no further change is accepted
+     *
+     * @param e the error that failed the writing
+     */
+    private void fail(IOException e) {
+        failure = e;
+        try {
+            log.close();
+        } catch (IOException closeError) {
+            e.addSuppressed(closeError);
+        }
+        log = null;
+        logFile = null;
+    }
+
+    /**
+     * @throws IllegalStateException if the tree was closed, or writing its log failed
+     */
+    private void ensureOpen() {
+        if (failure != null) {
+            throw new IllegalStateException("writing the log failed - tree is read only", failure);
+        }
+        if (log == null) {
+            throw new IllegalStateException("tree is closed");
+        }
+    }
+
+    /**
+     * loads the latest checkpoint, if there is one, into the tree
+     *
+     * @throws IOException if the checkpoint could not be read
+     */
+    private void loadCheckpoint() throws IOException {
+        File checkpointFile = new File(directory, CHECKPOINT_FILE_NAME);
+        if (!checkpointFile.exists()) {
+            return;
+        }
+        try (DataInputStream checkpoint = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(checkpointFile)))) {
+            int[] sorted = new int[checkpoint.readInt()];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = checkpoint.readInt();
+            }
+            buildFromSorted(sorted);
+        }
+    }
+
+    /**
+     * replays the log records on top of the loaded checkpoint. reading stops at the first incomplete or unknown record.
+     *
+     * @return the length in bytes of the valid part of the log
+     * @throws IOException if the log could not be read
+     */
+    private long replayLog() throws IOException {
+        File logFile = new File(directory, LOG_FILE_NAME);
+        if (!logFile.exists()) {
+            return 0;
+        }
+        try (DataInputStream log = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+            while (true) {
+                byte recordType = log.readByte();
+                int value = log.readInt();
+                if (recordType == ADD_RECORD) {
+                    add(value);
+                } else if (recordType == DELETE_RECORD) {
+                    delete(value);
+                } else {
+                    break;
+                }
+                loggedRecords++;
+            }
+        } catch (EOFException e) {
+            // a partially written record at the end of the log
+        }
+        return (long) loggedRecords * RECORD_SIZE;
+    }
+
+}
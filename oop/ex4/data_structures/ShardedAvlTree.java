@@ -0,0 +1,504 @@
+package oop.ex4.data_structures;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * this class implements a thread-safe set of integers, that partitions the key space into ranges, each held by a
+ * separate AVL tree (shard) with its own lock, so writers of different ranges do not contend with each other.
+ * a shard that grows beyond the maximal shard size is split in two, and a shard that shrinks below the minimal
+ * shard size is merged with a neighbour. splits and merges run online - they publish a new shards array and retire
+ * the replaced shards, and operations that reach a retired shard route again. only the shards being replaced are
+ * blocked meanwhile.
+ *
+ * @author lioraryepaz, tal.gliksman
+ */
+
+public class ShardedAvlTree implements Iterable<Integer> {
+
+    /**
+     * default number of values above which a shard is split
+     */
+    public static final int DEFAULT_MAX_SHARD_SIZE = 1 << 16;
+
+    /**
+     * default number of values below which a shard is merged with a neighbour
+     */
+    public static final int DEFAULT_MIN_SHARD_SIZE = DEFAULT_MAX_SHARD_SIZE / 4;
+
+    /**
+     * a single shard - an avl tree holding all the values from its lower bound up to the next shard's lower bound.
+     */
+    private static class Shard {
+
+        private final int lowerBound;
+
+        private final AvlTree tree;
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        /**
+         * true once a split or a merge replaced the shard. set under the shard's write lock, after the shards array
+         * without it was published.
+         */
+        private boolean retired;
+
+        /**
+         * Constructor
+         *
+         * @param lowerBound lowest value the shard may hold
+         * @param tree       the shard's values
+         */
+        Shard(int lowerBound, AvlTree tree) {
+            this.lowerBound = lowerBound;
+            this.tree = tree;
+        }
+    }
+
+    private final int maxShardSize;
+
+    private final int minShardSize;
+
+    /**
+     * serializes splits and merges, which are the only writers of the shards array.
+     */
+    private final ReentrantLock restructureLock = new ReentrantLock();
+
+    /**
+     * the shards, sorted by their lower bounds. the first shard's lower bound is always Integer.MIN_VALUE. the array
+     * is never changed in place - splits and merges replace it with a new one.
+     */
+    private volatile Shard[] shards;
+
+    /**
+     * The default constructor.
+     */
+    public ShardedAvlTree() {
+        this(DEFAULT_MIN_SHARD_SIZE, DEFAULT_MAX_SHARD_SIZE);
+    }
+
+    /**
+     * A constructor with custom shard size limits.
+     *
+     * @param minShardSize number of values below which a shard is merged (a positive number).
+     * @param maxShardSize number of values above which a shard is split, must be larger than twice minShardSize.
+     */
+    public ShardedAvlTree(int minShardSize, int maxShardSize) {
+        if ((minShardSize < 1) || (maxShardSize <= 2 * minShardSize)) {
+            throw new IllegalArgumentException();
+        }
+        this.minShardSize = minShardSize;
+        this.maxShardSize = maxShardSize;
+        shards = new Shard[]{new Shard(Integer.MIN_VALUE, new AvlTree())};
+    }
+
+    /**
+     * Add a new value to the set.
+     *
+     * @param newValue the value to add.
+     * @return true if the value was not already in the set and it was successfully added, false otherwise.
+     */
+    public boolean add(int newValue) {
+        while (true) {
+            Shard shard = route(shards, newValue);
+            boolean added;
+            shard.lock.writeLock().lock();
+            try {
+                if (shard.retired) {
+                    continue;
+                }
+                added = shard.tree.add(newValue);
+                if (shard.tree.size() <= maxShardSize) {
+                    return added;
+                }
+            } finally {
+                shard.lock.writeLock().unlock();
+            }
+            split(shard);
+            return added;
+        }
+    }
+
+    /**
+     * Removes a value from the set, if it exists.
+     *
+     * @param toDelete the value to remove
+     * @return true if the given value was found and deleted, false otherwise
+     */
+    public boolean delete(int toDelete) {
+        while (true) {
+            Shard shard = route(shards, toDelete);
+            boolean deleted;
+            shard.lock.writeLock().lock();
+            try {
+                if (shard.retired) {
+                    continue;
+                }
+                deleted = shard.tree.delete(toDelete);
+                if (!deleted || (shard.tree.size() >= minShardSize) || (shards.length == 1)) {
+                    return deleted;
+                }
+            } finally {
+                shard.lock.writeLock().unlock();
+            }
+            merge(shard);
+            return deleted;
+        }
+    }
+
+    /**
+     * Does the set contain a given value.
+     *
+     * @param searchVal value to search for
+     * @return true iff the value is in the set
+     */
+    public boolean contains(int searchVal) {
+        while (true) {
+            Shard shard = route(shards, searchVal);
+            shard.lock.readLock().lock();
+            try {
+                if (!shard.retired) {
+                    return shard.tree.contains(searchVal) != -1;
+                }
+            } finally {
+                shard.lock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * @return number of values in the set. each shard is counted atomically, but the count as a whole is not atomic
+     * with respect to concurrent changes.
+     */
+    public int size() {
+        int size = 0;
+        for (int[] chunk : chunks(Integer.MIN_VALUE, Integer.MAX_VALUE, true)) {
+            size += chunk[0];
+        }
+        return size;
+    }
+
+    /**
+     * @return current number of shards
+     */
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Returns the values of the set in a given range. each shard is scanned atomically, but the scan as a whole is
+     * not atomic with respect to concurrent changes in other shards.
+     *
+     * @param low  lowest value to return (inclusive)
+     * @param high highest value to return (inclusive)
+     * @return the values in the range, in ascending order
+     */
+    public int[] rangeScan(int low, int high) {
+        if (low > high) {
+            return new int[0];
+        }
+        ArrayList<int[]> parts = chunks(low, high, false);
+        int total = 0;
+        for (int[] part : parts) {
+            total += part.length;
+        }
+        int[] result = new int[total];
+        int position = 0;
+        for (int[] part : parts) {
+            System.arraycopy(part, 0, result, position, part.length);
+            position += part.length;
+        }
+        return result;
+    }
+
+    /**
+     * Returns an iterator over the set in an ascending order. the iterator copies one shard at a time, so it never
+     * blocks writers for long, and it reflects concurrent changes only in shards it did not reach yet. it does NOT
+     * implement the remove() method.
+     *
+     * @return an iterator for the set.
+     */
+    public Iterator<Integer> iterator() {
+
+        return new Iterator<Integer>() {
+
+            int[] chunk = new int[0];
+
+            int chunkIndex;
+
+            /**
+             * lowest value that was not copied yet
+             */
+            int nextBound = Integer.MIN_VALUE;
+
+            boolean lastChunk;
+
+            @Override
+            public boolean hasNext() {
+                while ((chunkIndex == chunk.length) && !lastChunk) {
+                    nextChunk();
+                }
+                return chunkIndex < chunk.length;
+            }
+
+            @Override
+            public Integer next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return chunk[chunkIndex++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            /**
+             * copies the values of the shard holding nextBound, starting at nextBound
+             */
+            private void nextChunk() {
+                while (true) {
+                    Shard[] current = shards;
+                    int index = routeIndex(current, nextBound);
+                    Shard shard = current[index];
+                    shard.lock.readLock().lock();
+                    try {
+                        if (shard.retired) {
+                            continue;
+                        }
+                        chunk = shard.tree.valuesInRange(nextBound, Integer.MAX_VALUE);
+                    } finally {
+                        shard.lock.readLock().unlock();
+                    }
+                    chunkIndex = 0;
+                    if (index + 1 < current.length) {
+                        nextBound = current[index + 1].lowerBound;
+                    } else {
+                        lastChunk = true;
+                    }
+                    return;
+                }
+            }
+        };
+    }
+
+    /**
+     * collects the values in a given range, one shard at a time. a shard found retired is skipped, and the range
+     * from its lower bound is routed again. a shard that is not retired keeps its upper bound, because a merge with
+     * its right neighbour would retire it.
+     *
+     * @param low       lowest value to collect (inclusive)
+     * @param high      highest value to collect (inclusive), not smaller than low
+     * @param countOnly true to collect only the shard sizes, each as a single element array
+     * @return the values of every shard in the range, in ascending order
+     */
+    private ArrayList<int[]> chunks(int low, int high, boolean countOnly) {
+        ArrayList<int[]> parts = new ArrayList<int[]>();
+        int from = low;
+        while (true) {
+            Shard[] current = shards;
+            int index = routeIndex(current, from);
+            Shard shard = current[index];
+            shard.lock.readLock().lock();
+            try {
+                if (shard.retired) {
+                    continue;
+                }
+                if (countOnly) {
+                    parts.add(new int[]{shard.tree.size()});
+                } else {
+                    parts.add(shard.tree.valuesInRange(from, high));
+                }
+            } finally {
+                shard.lock.readLock().unlock();
+            }
+            if ((index + 1 == current.length) || (current[index + 1].lowerBound > high)) {
+                return parts;
+            }
+            from = current[index + 1].lowerBound;
+        }
+    }
+
+    /**
+     * finds the shard responsible for a given value
+     *
+     * @param current a shards array
+     * @param value   value to route
+     * @return the shard whose range contains the value
+     */
+    private static Shard route(Shard[] current, int value) {
+        return current[routeIndex(current, value)];
+    }
+
+    /**
+     * finds the index of the shard responsible for a given value
+     *
+     * @param current a shards array
+     * @param value   value to route
+     * @return index of the last shard whose lower bound is not larger than the value
+     */
+    private static int routeIndex(Shard[] current, int value) {
+        int low = 0;
+        int high = current.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (current[middle].lowerBound <= value) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * splits an oversized shard into two shards of equal size, if it is still part of the set and still oversized.
+     *
+     * @param shard the shard to split
+     */
+    private void split(Shard shard) {
+        restructureLock.lock();
+        try {
+            Shard[] current = shards;
+            int index = indexOf(current, shard);
+            if (index == -1) {
+                return;
+            }
+            shard.lock.writeLock().lock();
+            try {
+                if (shard.tree.size() <= maxShardSize) {
+                    return;
+                }
+                int[] values = shard.tree.valuesInRange(Integer.MIN_VALUE, Integer.MAX_VALUE);
+                int middle = values.length / 2;
+                Shard[] newShards = new Shard[current.length + 1];
+                System.arraycopy(current, 0, newShards, 0, index);
+                newShards[index] = new Shard(shard.lowerBound, buildTree(values, 0, middle));
+                newShards[index + 1] = new Shard(values[middle], buildTree(values, middle, values.length));
+                System.arraycopy(current, index + 1, newShards, index + 2, current.length - index - 1);
+                shards = newShards;
+                shard.retired = true;
+            } finally {
+                shard.lock.writeLock().unlock();
+            }
+        } finally {
+            restructureLock.unlock();
+        }
+    }
+
+    /**
+     * merges an undersized shard with its smaller neighbour, if it is still part of the set, still undersized, and
+     * the merged shard would not be oversized.
+     *
+     * @param shard the shard to merge
+     */
+    private void merge(Shard shard) {
+        // an undersized shard between two large neighbours can not be merged - reject it without taking any lock, so
+        // deletes in such a shard do not serialize on the restructure lock
+        Shard[] snapshot = shards;
+        int snapshotIndex = indexOf(snapshot, shard);
+        if ((snapshotIndex == -1) || (mergeLeftIndex(snapshot, snapshotIndex) == -1)) {
+            return;
+        }
+        restructureLock.lock();
+        try {
+            Shard[] current = shards;
+            int index = indexOf(current, shard);
+            if (index == -1) {
+                return;
+            }
+            int leftIndex = mergeLeftIndex(current, index);
+            if (leftIndex == -1) {
+                return;
+            }
+            Shard left = current[leftIndex];
+            Shard right = current[leftIndex + 1];
+            // operations hold a single shard lock at a time, so locking two in key order can not deadlock
+            left.lock.writeLock().lock();
+            right.lock.writeLock().lock();
+            try {
+                if ((shard.tree.size() >= minShardSize) || (left.tree.size() + right.tree.size() > maxShardSize)) {
+                    return;
+                }
+                int[] leftValues = left.tree.valuesInRange(Integer.MIN_VALUE, Integer.MAX_VALUE);
+                int[] rightValues = right.tree.valuesInRange(Integer.MIN_VALUE, Integer.MAX_VALUE);
+                int[] values = new int[leftValues.length + rightValues.length];
+                System.arraycopy(leftValues, 0, values, 0, leftValues.length);
+                System.arraycopy(rightValues, 0, values, leftValues.length, rightValues.length);
+                Shard[] newShards = new Shard[current.length - 1];
+                System.arraycopy(current, 0, newShards, 0, leftIndex);
+                newShards[leftIndex] = new Shard(left.lowerBound, buildTree(values, 0, values.length));
+                System.arraycopy(current, leftIndex + 2, newShards, leftIndex + 1, current.length - leftIndex - 2);
+                shards = newShards;
+                left.retired = true;
+                right.retired = true;
+            } finally {
+                right.lock.writeLock().unlock();
+                left.lock.writeLock().unlock();
+            }
+        } finally {
+            restructureLock.unlock();
+        }
+    }
+
+    /**
+     * finds the index of a shard in a shards array
+     *
+     * @param current a shards array
+     * @param shard   shard to look for
+     * @return the shard's index, -1 if it was already replaced by a split or a merge
+     */
+    private static int indexOf(Shard[] current, Shard shard) {
+        int index = routeIndex(current, shard.lowerBound);
+        return (current[index] == shard) ? index : -1;
+    }
+
+    /**
+     * chooses the neighbour to merge a shard with - the smaller one. the sizes are read without locking, so they may
+     * be stale, and a merge that passes this check must be checked again under the shards' locks.
+     *
+     * @param current a shards array
+     * @param index   index of the shard to merge
+     * @return index of the left shard of the pair to merge, -1 if the merged shard would be oversized
+     */
+    private int mergeLeftIndex(Shard[] current, int index) {
+        if (current.length == 1) {
+            return -1;
+        }
+        int leftIndex;
+        if (index == 0) {
+            leftIndex = 0;
+        } else if (index == current.length - 1) {
+            leftIndex = index - 1;
+        } else if (current[index - 1].tree.size() <= current[index + 1].tree.size()) {
+            leftIndex = index - 1;
+        } else {
+            leftIndex = index;
+        }
+        if (current[leftIndex].tree.size() + current[leftIndex + 1].tree.size() > maxShardSize) {
+            return -1;
+        }
+        return leftIndex;
+    }
+
+    /**
+     * builds a balanced avl tree from a part of a sorted array, in linear time
+     *
+     * @param sorted strictly ascending values
+     * @param from   first index to take (inclusive)
+     * @param to     last index to take (exclusive)
+     * @return the new tree
+     */
+    private static AvlTree buildTree(int[] sorted, int from, int to) {
+        int[] part = new int[to - from];
+        System.arraycopy(sorted, from, part, 0, part.length);
+        AvlTree tree = new AvlTree();
+        tree.buildFromSorted(part);
+        return tree;
+    }
+
+}
@@ -0,0 +1,107 @@
+package oop.ex4.data_structures;
+
+import java.util.Random;
+
+/**
+ * measures the throughput of BinaryTree.lookupBatch against calling contains for every probe, for several tree sizes
+ * and batch sizes. every measurement is repeated, and the first rounds only warm up the JIT.
+ * usage: BatchLookupBenchmark [rounds]
+ *
+ * @author lioraryepaz, tal.gliksman
+ */
+
+public class BatchLookupBenchmark {
+
+    private static final int[] TREE_SIZES = {1000, 15000, 1000000};
+
+    private static final int[] BATCH_SIZES = {100, 30000};
+
+    private static final int WARMUP_ROUNDS = 3;
+
+    /**
+     * minimal number of probes answered per measurement, so small batches are repeated
+     */
+    private static final int PROBES_PER_ROUND = 1500000;
+
+    /**
+     * sink for lookup results, so the JIT can not drop the lookups
+     */
+    private static long found;
+
+    /**
+     * runs the benchmark
+     *
+     * @param args optional number of measured rounds (default 3)
+     */
+    public static void main(String[] args) {
+        int rounds = (args.length > 0) ? Integer.parseInt(args[0]) : 3;
+        System.out.println("tree size\tbatch size\tbatch probes/s\tloop probes/s\tspeedup");
+        for (int treeSize : TREE_SIZES) {
+            Random random = new Random(treeSize);
+            AvlTree tree = new AvlTree();
+            while (tree.size() < treeSize) {
+                tree.add(random.nextInt(4 * treeSize) - 2 * treeSize);
+            }
+            for (int batchSize : BATCH_SIZES) {
+                int[] probes = new int[batchSize];
+                for (int i = 0; i < batchSize; i++) {
+                    probes[i] = random.nextInt(4 * treeSize) - 2 * treeSize;
+                }
+                int repeats = Math.max(1, PROBES_PER_ROUND / batchSize);
+                double batch = 0;
+                double loop = 0;
+                for (int round = 0; round < WARMUP_ROUNDS + rounds; round++) {
+                    double roundBatch = batchThroughput(tree, probes, repeats);
+                    double roundLoop = loopThroughput(tree, probes, repeats);
+                    if (round >= WARMUP_ROUNDS) {
+                        batch += roundBatch / rounds;
+                        loop += roundLoop / rounds;
+                    }
+                }
+                System.out.printf("%d\t%d\t%.0f\t%.0f\t%.2f%n", treeSize, batchSize, batch, loop, batch / loop);
+            }
+        }
+        if (found == 0) {
+            System.out.println("no probe was found");
+        }
+    }
+
+    /**
+     * @param tree    tree to search in
+     * @param probes  values to search for
+     * @param repeats number of times to look up the whole batch
+     * @return probes per second with lookupBatch
+     */
+    private static double batchThroughput(AvlTree tree, int[] probes, int repeats) {
+        boolean[] results = new boolean[probes.length];
+        long start = System.nanoTime();
+        for (int repeat = 0; repeat < repeats; repeat++) {
+            tree.lookupBatch(probes, results);
+            if (results[repeat % results.length]) {
+                found++;
+            }
+        }
+        return (double) probes.length * repeats / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * @param tree    tree to search in
+     * @param probes  values to search for
+     * @param repeats number of times to look up the whole batch
+     * @return probes per second with contains for every probe
+     */
+    private static double loopThroughput(AvlTree tree, int[] probes, int repeats) {
+        boolean[] results = new boolean[probes.length];
+        long start = System.nanoTime();
+        for (int repeat = 0; repeat < repeats; repeat++) {
+            for (int i = 0; i < probes.length; i++) {
+                results[i] = tree.contains(probes[i]) != -1;
+            }
+            if (results[repeat % results.length]) {
+                found++;
+            }
+        }
+        return (double) probes.length * repeats / ((System.nanoTime() - start) / 1e9);
+    }
+
+}
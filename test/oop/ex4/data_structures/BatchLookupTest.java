@@ -0,0 +1,151 @@
+package oop.ex4.data_structures;
+
+import java.util.Random;
+
+/**
+ * regression checks for the batch lookups of BinaryTree, runnable without a test framework - a failed check throws
+ * an AssertionError.
+ *
+ * @author lioraryepaz, tal.gliksman
+ */
+
+public class BatchLookupTest {
+
+    /**
+     * runs all the checks
+     *
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        emptyProbesAndEmptyTree();
+        mismatchedOutputIsRejected();
+        matchesContainsWithTombstones();
+        containsAll();
+        randomProbesMatchContains();
+        System.out.println("all checks passed");
+    }
+
+    /**
+     * an empty probe array and an empty tree are answered without errors.
+     */
+    private static void emptyProbesAndEmptyTree() {
+        AvlTree tree = new AvlTree(new int[]{1, 2, 3});
+        tree.lookupBatch(new int[0], new boolean[0]);
+        tree.lookupBatch(new int[0], new int[0]);
+        check(tree.containsAll(new int[0]), "empty probes are all contained");
+        AvlTree empty = new AvlTree();
+        checkMatchesContains(empty, new int[]{0, -1, Integer.MIN_VALUE, Integer.MAX_VALUE});
+        check(!empty.containsAll(new int[]{0}), "empty tree contains nothing");
+    }
+
+    /**
+     * output arrays of a different length than the probes are rejected.
+     */
+    private static void mismatchedOutputIsRejected() {
+        AvlTree tree = new AvlTree(new int[]{1});
+        try {
+            tree.lookupBatch(new int[]{1, 2}, new boolean[1]);
+            check(false, "short found array");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            tree.lookupBatch(new int[]{1}, new int[2]);
+            check(false, "long depths array");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * duplicate, negative, extreme, missing and tombstoned probes are answered like contains.
+     */
+    private static void matchesContainsWithTombstones() {
+        AvlTree tree = new AvlTree();
+        tree.setLazyDeletion(true);
+        tree.setCompactionThreshold(BinaryTree.MANUAL_COMPACTION);
+        int[] values = {Integer.MIN_VALUE, -1000000, -7, -1, 0, 1, 7, 42, 1000000, Integer.MAX_VALUE};
+        for (int value : values) {
+            tree.add(value);
+        }
+        tree.delete(-7);
+        tree.delete(42);
+        tree.delete(Integer.MAX_VALUE);
+        int[] probes = {42, -7, 7, 7, Integer.MIN_VALUE, Integer.MAX_VALUE, -1, -1, 0, -2, 2, Integer.MIN_VALUE + 1,
+                Integer.MAX_VALUE - 1, -1000000, 1000000, 7, -7, 0};
+        checkMatchesContains(tree, probes);
+        int[] depths = new int[probes.length];
+        tree.lookupBatch(probes, depths);
+        check(depths[0] == -1, "tombstone is not found");
+        check(depths[2] == depths[3], "duplicate probes get the same depth");
+        check(depths[4] != -1, "min value is found");
+        check(depths[5] == -1, "deleted max value is not found");
+    }
+
+    /**
+     * containsAll is true iff every probe is contained.
+     */
+    private static void containsAll() {
+        AvlTree tree = new AvlTree(new int[]{-5, -3, 0, 2, Integer.MIN_VALUE});
+        check(tree.containsAll(new int[]{2, -5, 2, Integer.MIN_VALUE}), "all contained");
+        check(!tree.containsAll(new int[]{2, -5, 3}), "one missing");
+        tree.setLazyDeletion(true);
+        tree.delete(-3);
+        check(!tree.containsAll(new int[]{-3}), "tombstone is missing");
+    }
+
+    /**
+     * random probes, many of them negative or repeated, match contains on random trees.
+     */
+    private static void randomProbesMatchContains() {
+        Random random = new Random(29);
+        for (int round = 0; round < 50; round++) {
+            AvlTree tree = new AvlTree();
+            tree.setLazyDeletion(round % 2 == 0);
+            int range = 1 + random.nextInt(2000);
+            for (int i = 0; i < range; i++) {
+                tree.add(random.nextInt(range) - range / 2);
+            }
+            for (int i = 0; i < range / 3; i++) {
+                tree.delete(random.nextInt(range) - range / 2);
+            }
+            int[] probes = new int[random.nextInt(3000)];
+            for (int i = 0; i < probes.length; i++) {
+                probes[i] = random.nextInt(range + 20) - range / 2 - 10;
+            }
+            checkMatchesContains(tree, probes);
+        }
+    }
+
+    /**
+     * checks both lookupBatch overloads against contains for every probe
+     *
+     * @param tree   tree to check
+     * @param probes values to look up
+     */
+    private static void checkMatchesContains(BinaryTree tree, int[] probes) {
+        int[] depths = new int[probes.length];
+        boolean[] found = new boolean[probes.length];
+        tree.lookupBatch(probes, depths);
+        tree.lookupBatch(probes, found);
+        boolean all = true;
+        for (int i = 0; i < probes.length; i++) {
+            int depth = tree.contains(probes[i]);
+            check(depths[i] == depth, "depth of " + probes[i]);
+            check(found[i] == (depth != -1), "found " + probes[i]);
+            all &= found[i];
+        }
+        check(tree.containsAll(probes) == all, "containsAll");
+    }
+
+    /**
+     * @param condition condition that should hold
+     * @param message   description of the check
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+package oop.ex4.data_structures;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * measures the write throughput of DurableAvlTree under every fsync policy and group commit size, and its recovery
+ * time as a function of the log length, next to recovering the same content from a checkpoint.
+ * usage: DurableAvlTreeBenchmark [seconds per write run]
+ *
+ * @author lioraryepaz, tal.gliksman
+ */
+
+public class DurableAvlTreeBenchmark {
+
+    private static final int[] GROUP_COMMIT_SIZES = {1, 16, 256};
+
+    private static final int[] LOG_LENGTHS = {10000, 100000, 1000000, 4000000};
+
+    /**
+     * runs the benchmark
+     *
+     * @param args optional seconds per write run (default 1)
+     * @throws IOException if the tree files could not be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        double seconds = (args.length > 0) ? Double.parseDouble(args[0]) : 1;
+        File directory = Files.createTempDirectory("durable-avl-benchmark").toFile();
+        try {
+            System.out.println("policy\tgroup\twrites/s");
+            for (DurableAvlTree.FsyncPolicy policy : DurableAvlTree.FsyncPolicy.values()) {
+                for (int groupCommitSize : GROUP_COMMIT_SIZES) {
+                    File runDirectory = new File(directory, policy + "-" + groupCommitSize);
+                    double throughput = writeThroughput(runDirectory, policy, groupCommitSize, seconds);
+                    System.out.printf("%s\t%d\t%.0f%n", policy, groupCommitSize, throughput);
+                    deleteRecursively(runDirectory);
+                }
+            }
+            System.out.println("log records\tsize\tlog replay ms\tcheckpoint load ms");
+            for (int logLength : LOG_LENGTHS) {
+                File runDirectory = new File(directory, "recovery-" + logLength);
+                recoveryTime(runDirectory, logLength);
+                deleteRecursively(runDirectory);
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    /**
+     * adds and deletes random values for a given time
+     *
+     * @param directory       directory for the tree files
+     * @param policy          fsync policy
+     * @param groupCommitSize number of records in a commit group
+     * @param seconds         run time
+     * @return successful changes per second, including closing the tree
+     * @throws IOException if the tree files could not be written
+     */
+    private static double writeThroughput(File directory, DurableAvlTree.FsyncPolicy policy, int groupCommitSize,
+                                          double seconds) throws IOException {
+        DurableAvlTree tree = new DurableAvlTree(directory, policy, groupCommitSize,
+                DurableAvlTree.DEFAULT_CHECKPOINT_INTERVAL);
+        Random random = new Random(1);
+        long start = System.nanoTime();
+        long end = start + (long) (seconds * 1e9);
+        long changes = 0;
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < 16; i++) {
+                int value = random.nextInt(1 << 16);
+                if (random.nextBoolean() ? tree.add(value) : tree.delete(value)) {
+                    changes++;
+                }
+            }
+        }
+        tree.close();
+        return changes / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * writes a log of a given length, then times recovering from it, and from a checkpoint of the same content
+     *
+     * @param directory directory for the tree files
+     * @param logLength number of records to write
+     * @throws IOException if the tree files could not be written or read
+     */
+    private static void recoveryTime(File directory, int logLength) throws IOException {
+        DurableAvlTree tree = new DurableAvlTree(directory, DurableAvlTree.FsyncPolicy.NEVER, 1024,
+                Integer.MAX_VALUE);
+        Random random = new Random(logLength);
+        int written = 0;
+        while (written < logLength) {
+            int value = random.nextInt(logLength);
+            // two adds for every delete, so the tree keeps growing with the log
+            if ((random.nextInt(3) == 0) ? tree.delete(value) : tree.add(value)) {
+                written++;
+            }
+        }
+        tree.close();
+        long start = System.nanoTime();
+        DurableAvlTree replayed = new DurableAvlTree(directory);
+        double replayMillis = (System.nanoTime() - start) / 1e6;
+        int size = replayed.size();
+        replayed.checkpoint();
+        replayed.close();
+        start = System.nanoTime();
+        DurableAvlTree loaded = new DurableAvlTree(directory);
+        double loadMillis = (System.nanoTime() - start) / 1e6;
+        loaded.close();
+        System.out.printf("%d\t%d\t%.1f\t%.1f%n", logLength, size, replayMillis, loadMillis);
+    }
+
+    /**
+     * @param file file or directory to delete, with all its content
+     */
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+}
@@ -0,0 +1,242 @@
+package oop.ex4.data_structures;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * regression checks for DurableAvlTree, runnable without a test framework - a failed check throws an AssertionError.
+ *
+ * @author lioraryepaz, tal.gliksman
+ */
+
+public class DurableAvlTreeTest {
+
+    private static final String LOG_FILE_NAME = "tree.log";
+
+    private static final String CHECKPOINT_FILE_NAME = "tree.checkpoint";
+
+    private static final int RECORD_SIZE = 5;
+
+    /**
+     * runs all the checks
+     *
+     * @param args unused
+     * @throws IOException if the tree files could not be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        File directory = Files.createTempDirectory("durable-avl").toFile();
+        try {
+            deleteWithTwoSonsIsRecovered(new File(directory, "two-sons"));
+            closedTreeIsNotChanged(new File(directory, "closed"));
+            checkpointAndLogTailAreRecovered(new File(directory, "checkpoint"));
+            tornRecordIsTruncated(new File(directory, "torn"));
+            repeatedReopeningKeepsContent(new File(directory, "reopen"));
+            failedWriteRejectsChanges(new File(directory, "failed"));
+        } finally {
+            deleteRecursively(directory);
+        }
+        System.out.println("all checks passed");
+    }
+
+    /**
+     * deleting a node with two sons logs a single record, and the log replays to the same content.
+     *
+     * @param directory directory for the tree files
+     * @throws IOException if the tree files could not be written or read
+     */
+    private static void deleteWithTwoSonsIsRecovered(File directory) throws IOException {
+        DurableAvlTree tree = new DurableAvlTree(directory, DurableAvlTree.FsyncPolicy.ALWAYS, 1, 1000);
+        tree.add(2);
+        tree.add(1);
+        tree.add(3);
+        tree.delete(2);
+        tree.close();
+        check(new File(directory, LOG_FILE_NAME).length() == 4 * RECORD_SIZE, "one record per successful change");
+        DurableAvlTree recovered = new DurableAvlTree(directory, DurableAvlTree.FsyncPolicy.ALWAYS, 1, 1000);
+        check(recovered.size() == 2, "recovered size");
+        check(recovered.contains(1) != -1, "recovered 1");
+        check(recovered.contains(3) != -1, "recovered 3");
+        check(recovered.contains(2) == -1, "2 stays deleted");
+        recovered.close();
+    }
+
+    /**
+     * changes of a closed tree are rejected before the tree is changed.
+     *
+     * @param directory directory for the tree files
+     * @throws IOException if the tree files could not be written or read
+     */
+    private static void closedTreeIsNotChanged(File directory) throws IOException {
+        DurableAvlTree tree = new DurableAvlTree(directory);
+        tree.add(1);
+        tree.close();
+        try {
+            tree.add(12345);
+            check(false, "add after close throws");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            tree.delete(1);
+            check(false, "delete after close throws");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        check(tree.contains(12345) == -1, "closed tree is not added to");
+        check(tree.contains(1) != -1, "closed tree is not deleted from");
+        check(tree.size() == 1, "closed tree size");
+    }
+
+    /**
+     * a checkpoint truncates the log, and recovery loads the checkpoint and replays the records logged after it.
+     *
+     * @param directory directory for the tree files
+     * @throws IOException if the tree files could not be written or read
+     */
+    private static void checkpointAndLogTailAreRecovered(File directory) throws IOException {
+        DurableAvlTree tree = new DurableAvlTree(directory, DurableAvlTree.FsyncPolicy.ALWAYS, 2, 4);
+        TreeSet<Integer> reference = new TreeSet<Integer>();
+        for (int value = 0; value < 8; value++) {
+            tree.add(value);
+            reference.add(value);
+        }
+        tree.delete(3);
+        reference.remove(3);
+        tree.add(100);
+        reference.add(100);
+        tree.close();
+        check(new File(directory, CHECKPOINT_FILE_NAME).exists(), "checkpoint written");
+        check(new File(directory, LOG_FILE_NAME).length() == 2 * RECORD_SIZE, "log truncated at checkpoint");
+        DurableAvlTree recovered = new DurableAvlTree(directory, DurableAvlTree.FsyncPolicy.ALWAYS, 2, 4);
+        checkContent(recovered, reference, "checkpoint and log tail");
+        recovered.close();
+    }
+
+    /**
+     * a partially written record at the end of the log is dropped on recovery, and new records are appended after
+     * the last complete one.
+     *
+     * @param directory directory for the tree files
+     * @throws IOException if the tree files could not be written or read
+     */
+    private static void tornRecordIsTruncated(File directory) throws IOException {
+        DurableAvlTree tree = new DurableAvlTree(directory, DurableAvlTree.FsyncPolicy.ALWAYS, 1, 1000);
+        tree.add(10);
+        tree.add(20);
+        tree.close();
+        File logFile = new File(directory, LOG_FILE_NAME);
+        try (FileOutputStream log = new FileOutputStream(logFile, true)) {
+            log.write(new byte[]{1, 0, 0});
+        }
+        DurableAvlTree recovered = new DurableAvlTree(directory, DurableAvlTree.FsyncPolicy.ALWAYS, 1, 1000);
+        check(logFile.length() == 2 * RECORD_SIZE, "torn record truncated");
+        check(recovered.size() == 2, "torn record ignored");
+        recovered.add(30);
+        recovered.close();
+        TreeSet<Integer> reference = new TreeSet<Integer>();
+        reference.add(10);
+        reference.add(20);
+        reference.add(30);
+        DurableAvlTree reopened = new DurableAvlTree(directory, DurableAvlTree.FsyncPolicy.ALWAYS, 1, 1000);
+        checkContent(reopened, reference, "record appended after torn one");
+        reopened.close();
+    }
+
+    /**
+     * random changes over several reopenings, with checkpoints in between, keep the same content as a reference set.
+     *
+     * @param directory directory for the tree files
+     * @throws IOException if the tree files could not be written or read
+     */
+    private static void repeatedReopeningKeepsContent(File directory) throws IOException {
+        TreeSet<Integer> reference = new TreeSet<Integer>();
+        Random random = new Random(26);
+        DurableAvlTree.FsyncPolicy[] policies = DurableAvlTree.FsyncPolicy.values();
+        for (int round = 0; round < 6; round++) {
+            DurableAvlTree tree = new DurableAvlTree(directory, policies[round % policies.length], 8, 150);
+            checkContent(tree, reference, "reopening " + round);
+            for (int i = 0; i < 400; i++) {
+                int value = random.nextInt(200) - 100;
+                if (random.nextBoolean()) {
+                    check(tree.add(value) == reference.add(value), "add " + value);
+                } else {
+                    check(tree.delete(value) == reference.remove(value), "delete " + value);
+                }
+            }
+            tree.close();
+        }
+        DurableAvlTree tree = new DurableAvlTree(directory);
+        checkContent(tree, reference, "last reopening");
+        tree.close();
+    }
+
+    /**
+     * when writing the log fails, the change that caused it stays in the tree, and further changes are rejected.
+     *
+     * @param directory directory for the tree files
+     * @throws IOException if the tree files could not be written or read
+     */
+    private static void failedWriteRejectsChanges(File directory) throws IOException {
+        DurableAvlTree tree = new DurableAvlTree(directory, DurableAvlTree.FsyncPolicy.ALWAYS, 1, 1);
+        // with the directory gone, the checkpoint after the next change can not be written
+        deleteRecursively(directory);
+        try {
+            tree.add(1);
+            check(false, "failed write throws");
+        } catch (UncheckedIOException e) {
+            // expected
+        }
+        check(tree.contains(1) != -1, "failed change stays in the tree");
+        try {
+            tree.add(2);
+            check(false, "add after failure throws");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        check(tree.contains(2) == -1, "failed tree is not changed");
+        tree.close();
+    }
+
+    /**
+     * @param tree      tree to check
+     * @param reference expected content
+     * @param message   description of the check
+     */
+    private static void checkContent(DurableAvlTree tree, TreeSet<Integer> reference, String message) {
+        check(tree.size() == reference.size(), message + " - size");
+        Iterator<Integer> expected = reference.iterator();
+        for (int value : tree) {
+            check(expected.hasNext() && (expected.next() == value), message + " - content");
+        }
+    }
+
+    /**
+     * @param file file or directory to delete, with all its content
+     */
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * @param condition condition that should hold
+     * @param message   description of the check
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+}
@@ -0,0 +1,275 @@
+package oop.ex4.data_structures;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * regression checks for lazy deletion in BinaryTree and AvlTree, runnable without a test framework - a failed check
+ * throws an AssertionError.
+ *
+ * @author lioraryepaz, tal.gliksman
+ */
+
+public class LazyDeletionTest {
+
+    /**
+     * runs all the checks
+     *
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        deletedValueIsRevived();
+        iterationAndSizeSkipTombstones();
+        thresholdTriggersCompaction();
+        manualCompaction();
+        turningLazyDeletionOffCompacts();
+        invalidThresholdsAreRejected();
+        heightsStayValidAfterCompaction();
+        matchesReferenceSet(new AvlTree());
+        matchesReferenceSet(new BinaryTree());
+        System.out.println("all checks passed");
+    }
+
+    /**
+     * adding a lazily deleted value revives its node in place, without restructuring the tree.
+     */
+    private static void deletedValueIsRevived() {
+        AvlTree tree = lazyTree(1, 2, 3, 4, 5, 6, 7);
+        BinaryNode root = tree.root;
+        check(tree.delete(root.getData()), "delete root");
+        check(!tree.delete(root.getData()), "delete tombstone again");
+        check(tree.contains(root.getData()) == -1, "tombstone is not contained");
+        check(tree.size() == 6, "size after delete");
+        String shape = shape(tree.root);
+        check(tree.add(root.getData()), "revive root");
+        check(!tree.add(root.getData()), "add revived value again");
+        check(tree.root == root, "revived in place");
+        check(shape(tree.root).equals(shape), "revival does not restructure");
+        check(tree.contains(root.getData()) == 0, "revived root depth");
+        check(tree.size() == 7, "size after revival");
+        checkAvl(tree.root);
+    }
+
+    /**
+     * the iterator and size count only live values.
+     */
+    private static void iterationAndSizeSkipTombstones() {
+        AvlTree tree = lazyTree(5, 3, 8, 1, 4, 7, 9);
+        tree.delete(1);
+        tree.delete(5);
+        tree.delete(9);
+        check(tree.size() == 4, "size skips tombstones");
+        int[] expected = {3, 4, 7, 8};
+        int index = 0;
+        for (int value : tree) {
+            check((index < expected.length) && (value == expected[index]), "iteration skips tombstones");
+            index++;
+        }
+        check(index == expected.length, "iteration length");
+        check(nodeCount(tree.root) == 7, "tombstones are kept until compaction");
+    }
+
+    /**
+     * the tree is compacted by the delete that passes the compaction threshold, and not before.
+     */
+    private static void thresholdTriggersCompaction() {
+        AvlTree tree = lazyTree(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        for (int value = 0; value < 5; value++) {
+            tree.delete(value);
+        }
+        check(nodeCount(tree.root) == 10, "half tombstones is not above the default threshold");
+        tree.delete(5);
+        check(nodeCount(tree.root) == 4, "compacted when passing the threshold");
+        check(tree.size() == 4, "size after compaction");
+        checkAvl(tree.root);
+        tree = lazyTree(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        tree.setCompactionThreshold(0.1);
+        tree.delete(0);
+        check(nodeCount(tree.root) == 10, "one tombstone out of ten is not above 0.1");
+        tree.delete(1);
+        check(nodeCount(tree.root) == 8, "compacted when passing 0.1");
+    }
+
+    /**
+     * with manual compaction, tombstones stay until compact is called.
+     */
+    private static void manualCompaction() {
+        AvlTree tree = lazyTree(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        tree.setCompactionThreshold(BinaryTree.MANUAL_COMPACTION);
+        for (int value = 0; value < 10; value++) {
+            tree.delete(value);
+        }
+        check(nodeCount(tree.root) == 10, "no automatic compaction");
+        check(tree.size() == 0, "all deleted");
+        check(!tree.iterator().hasNext(), "nothing to iterate");
+        tree.compact();
+        check(tree.root == null, "compacted to an empty tree");
+        tree.add(3);
+        check((tree.size() == 1) && (tree.contains(3) == 0), "add after compacting to empty");
+    }
+
+    /**
+     * turning lazy deletion off removes the tombstones, and later deletes remove nodes immediately.
+     */
+    private static void turningLazyDeletionOffCompacts() {
+        AvlTree tree = lazyTree(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        tree.delete(2);
+        tree.delete(7);
+        tree.setLazyDeletion(false);
+        check(nodeCount(tree.root) == 8, "compacted when turned off");
+        tree.delete(4);
+        check(nodeCount(tree.root) == 7, "eager delete removes the node");
+        check(tree.size() == 7, "size after eager delete");
+        checkAvl(tree.root);
+    }
+
+    /**
+     * compaction thresholds outside (0, 1] are rejected.
+     */
+    private static void invalidThresholdsAreRejected() {
+        double[] invalid = {0, -0.5, 1.5};
+        for (double threshold : invalid) {
+            try {
+                new AvlTree().setCompactionThreshold(threshold);
+                check(false, "invalid threshold " + threshold);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * a tree rebuilt by compaction keeps valid avl heights through the rotations of later adds and eager deletes.
+     */
+    private static void heightsStayValidAfterCompaction() {
+        AvlTree tree = new AvlTree();
+        tree.setLazyDeletion(true);
+        for (int value = 0; value < 1000; value++) {
+            tree.add(value);
+        }
+        for (int value = 0; value < 1000; value += 3) {
+            tree.delete(value);
+        }
+        tree.setLazyDeletion(false);
+        checkAvl(tree.root);
+        for (int value = 1000; value < 1500; value++) {
+            tree.add(value);
+            checkAvl(tree.root);
+        }
+        for (int value = 1; value < 1500; value += 2) {
+            tree.delete(value);
+            checkAvl(tree.root);
+        }
+    }
+
+    /**
+     * random changes, switching between lazy and eager deletion, give the same results as a reference set.
+     *
+     * @param tree an empty tree to check
+     */
+    private static void matchesReferenceSet(BinaryTree tree) {
+        TreeSet<Integer> reference = new TreeSet<Integer>();
+        Random random = new Random(28);
+        tree.setCompactionThreshold(0.3);
+        for (int i = 0; i < 50000; i++) {
+            if (i % 5000 == 0) {
+                tree.setLazyDeletion(i % 10000 == 0);
+            }
+            int value = random.nextInt(1000) - 500;
+            if (random.nextBoolean()) {
+                check(tree.add(value) == reference.add(value), "add " + value);
+            } else {
+                check(tree.delete(value) == reference.remove(value), "delete " + value);
+            }
+            if (i % 1000 == 0) {
+                check(tree.size() == reference.size(), "size");
+                Iterator<Integer> expected = reference.iterator();
+                for (int actual : tree) {
+                    check(expected.hasNext() && (expected.next() == actual), "iteration");
+                }
+                check(!expected.hasNext(), "iteration length");
+                for (int probe = -500; probe < 500; probe++) {
+                    check((tree.contains(probe) != -1) == reference.contains(probe), "contains " + probe);
+                }
+                if (tree instanceof AvlTree) {
+                    checkAvl(tree.root);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param values values to add
+     * @return an avl tree in lazy deletion mode holding the values
+     */
+    private static AvlTree lazyTree(int... values) {
+        AvlTree tree = new AvlTree();
+        tree.setLazyDeletion(true);
+        for (int value : values) {
+            tree.add(value);
+        }
+        return tree;
+    }
+
+    /**
+     * @param subTreeRoot subtree root, may be null
+     * @return number of nodes in the subtree, including tombstones
+     */
+    private static int nodeCount(BinaryNode subTreeRoot) {
+        if (subTreeRoot == null) {
+            return 0;
+        }
+        return 1 + nodeCount(subTreeRoot.getLeftSon()) + nodeCount(subTreeRoot.getRightSon());
+    }
+
+    /**
+     * @param subTreeRoot subtree root, may be null
+     * @return a description of the subtree's values and structure
+     */
+    private static String shape(BinaryNode subTreeRoot) {
+        if (subTreeRoot == null) {
+            return ".";
+        }
+        return "(" + shape(subTreeRoot.getLeftSon()) + subTreeRoot.getData() + shape(subTreeRoot.getRightSon()) + ")";
+    }
+
+    /**
+     * checks that a subtree is ordered, its father links are consistent, its heights are correct and it is balanced
+     *
+     * @param subTreeRoot subtree root, may be null
+     * @return the subtree's height, -1 for an empty subtree
+     */
+    private static int checkAvl(BinaryNode subTreeRoot) {
+        if (subTreeRoot == null) {
+            return -1;
+        }
+        BinaryNode leftSon = subTreeRoot.getLeftSon();
+        BinaryNode rightSon = subTreeRoot.getRightSon();
+        if (leftSon != null) {
+            check(leftSon.getFather() == subTreeRoot, "left son's father");
+            check(leftSon.getData() < subTreeRoot.getData(), "left son is smaller");
+        }
+        if (rightSon != null) {
+            check(rightSon.getFather() == subTreeRoot, "right son's father");
+            check(rightSon.getData() > subTreeRoot.getData(), "right son is bigger");
+        }
+        int leftHeight = checkAvl(leftSon);
+        int rightHeight = checkAvl(rightSon);
+        check(Math.abs(leftHeight - rightHeight) <= 1, "balanced at " + subTreeRoot.getData());
+        int height = Math.max(leftHeight, rightHeight) + 1;
+        check(subTreeRoot.getHeight() == height, "height of " + subTreeRoot.getData());
+        return height;
+    }
+
+    /**
+     * @param condition condition that should hold
+     * @param message   description of the check
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+}
@@ -0,0 +1,187 @@
+package oop.ex4.data_structures;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * measures the throughput of ShardedAvlTree on a mixed read/write workload from 1 to 32 threads, next to a single
+ * AvlTree guarded by one read-write lock.
+ * usage: ShardedAvlTreeBenchmark [seconds per run] [percent of writes]
+ *
+ * @author lioraryepaz, tal.gliksman
+ */
+
+public class ShardedAvlTreeBenchmark {
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32};
+
+    private static final int KEY_RANGE = 1 << 20;
+
+    /**
+     * a set under test
+     */
+    private interface IntSet {
+
+        /**
+         * @param value value to add
+         */
+        void add(int value);
+
+        /**
+         * @param value value to delete
+         */
+        void delete(int value);
+
+        /**
+         * @param value value to search for
+         */
+        void contains(int value);
+    }
+
+    /**
+     * runs the benchmark
+     *
+     * @param args optional seconds per run (default 2) and percent of writes (default 20)
+     * @throws InterruptedException if interrupted while waiting for the worker threads
+     */
+    public static void main(String[] args) throws InterruptedException {
+        double seconds = (args.length > 0) ? Double.parseDouble(args[0]) : 2;
+        int writePercent = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+        System.out.println("cores: " + Runtime.getRuntime().availableProcessors() + ", writes: " + writePercent
+                + "%, keys: " + KEY_RANGE);
+        System.out.println("threads\tsharded ops/s\tsingle lock ops/s");
+        for (int threads : THREAD_COUNTS) {
+            double sharded = run(newShardedSet(), threads, seconds, writePercent);
+            double single = run(newSingleLockSet(), threads, seconds, writePercent);
+            System.out.printf("%d\t%.0f\t%.0f%n", threads, sharded, single);
+        }
+    }
+
+    /**
+     * @return a sharded set, filled with half of the keys
+     */
+    private static IntSet newShardedSet() {
+        final ShardedAvlTree tree = new ShardedAvlTree(1 << 10, 1 << 13);
+        IntSet set = new IntSet() {
+            @Override
+            public void add(int value) {
+                tree.add(value);
+            }
+
+            @Override
+            public void delete(int value) {
+                tree.delete(value);
+            }
+
+            @Override
+            public void contains(int value) {
+                tree.contains(value);
+            }
+        };
+        fill(set);
+        return set;
+    }
+
+    /**
+     * @return a single avl tree guarded by one read-write lock, filled with half of the keys
+     */
+    private static IntSet newSingleLockSet() {
+        final AvlTree tree = new AvlTree();
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        IntSet set = new IntSet() {
+            @Override
+            public void add(int value) {
+                lock.writeLock().lock();
+                try {
+                    tree.add(value);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+
+            @Override
+            public void delete(int value) {
+                lock.writeLock().lock();
+                try {
+                    tree.delete(value);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+
+            @Override
+            public void contains(int value) {
+                lock.readLock().lock();
+                try {
+                    tree.contains(value);
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+        };
+        fill(set);
+        return set;
+    }
+
+    /**
+     * @param set set to fill with every second key
+     */
+    private static void fill(IntSet set) {
+        for (int value = 0; value < KEY_RANGE; value += 2) {
+            set.add(value);
+        }
+    }
+
+    /**
+     * runs the workload on a set for a given time
+     *
+     * @param set          set under test
+     * @param threads      number of worker threads
+     * @param seconds      run time
+     * @param writePercent percent of operations that are adds or deletes, half each
+     * @return operations per second
+     * @throws InterruptedException if interrupted while waiting for the worker threads
+     */
+    private static double run(final IntSet set, int threads, double seconds, final int writePercent)
+            throws InterruptedException {
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicLong operations = new AtomicLong();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(id);
+                    long count = 0;
+                    while (running.get()) {
+                        int value = random.nextInt(KEY_RANGE);
+                        int operation = random.nextInt(100);
+                        if (operation < writePercent / 2) {
+                            set.add(value);
+                        } else if (operation < writePercent) {
+                            set.delete(value);
+                        } else {
+                            set.contains(value);
+                        }
+                        count++;
+                    }
+                    operations.addAndGet(count);
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        Thread.sleep((long) (seconds * 1000));
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return operations.get() / ((System.nanoTime() - start) / 1e9);
+    }
+
+}
@@ -0,0 +1,237 @@
+package oop.ex4.data_structures;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * regression checks for ShardedAvlTree, runnable without a test framework - a failed check throws an AssertionError.
+ *
+ * @author lioraryepaz, tal.gliksman
+ */
+
+public class ShardedAvlTreeTest {
+
+    private static final int THREADS = 8;
+
+    private static final int CONCURRENT_KEYS = 512;
+
+    private static final int CONCURRENT_OPERATIONS = 200000;
+
+    /**
+     * runs all the checks
+     *
+     * @param args unused
+     * @throws InterruptedException if interrupted while waiting for the worker threads
+     */
+    public static void main(String[] args) throws InterruptedException {
+        invalidShardSizesAreRejected();
+        matchesReferenceSet(1, 3);
+        matchesReferenceSet(2, 5);
+        matchesReferenceSet(4, 16);
+        concurrentChangesKeepNetCounts();
+        System.out.println("all checks passed");
+    }
+
+    /**
+     * shard size limits that would disable merging or make a split undersized are rejected.
+     */
+    private static void invalidShardSizesAreRejected() {
+        int[][] invalid = {{0, 1}, {-1, 4}, {2, 4}};
+        for (int[] sizes : invalid) {
+            try {
+                new ShardedAvlTree(sizes[0], sizes[1]);
+                check(false, "invalid shard sizes " + sizes[0] + ", " + sizes[1]);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * random single-threaded changes with small shard limits, forcing many splits and merges, give the same results
+     * as a reference set.
+     *
+     * @param minShardSize minimal shard size
+     * @param maxShardSize maximal shard size
+     */
+    private static void matchesReferenceSet(int minShardSize, int maxShardSize) {
+        ShardedAvlTree tree = new ShardedAvlTree(minShardSize, maxShardSize);
+        TreeSet<Integer> reference = new TreeSet<Integer>();
+        Random random = new Random(minShardSize * 31 + maxShardSize);
+        int maxShards = 1;
+        for (int i = 0; i < 20000; i++) {
+            int value = randomValue(random, 600);
+            if (random.nextInt(5) < 3) {
+                check(tree.add(value) == reference.add(value), "add " + value);
+            } else {
+                check(tree.delete(value) == reference.remove(value), "delete " + value);
+            }
+            maxShards = Math.max(maxShards, tree.shardCount());
+            if (i % 500 == 0) {
+                checkContent(tree, reference, random);
+            }
+        }
+        check(maxShards > 10, "shards were split");
+        for (int value : new ArrayList<Integer>(reference)) {
+            check(tree.delete(value), "delete all " + value);
+        }
+        reference.clear();
+        checkContent(tree, reference, random);
+        check(tree.shardCount() == 1, "empty shards were merged");
+    }
+
+    /**
+     * @param random random generator
+     * @param range  number of different ordinary values
+     * @return a value around zero, or one of the extreme values
+     */
+    private static int randomValue(Random random, int range) {
+        int choice = random.nextInt(100);
+        if (choice == 0) {
+            return Integer.MIN_VALUE;
+        } else if (choice == 1) {
+            return Integer.MAX_VALUE;
+        }
+        return random.nextInt(range) - range / 2;
+    }
+
+    /**
+     * checks size, contains, iteration and range scans against a reference set
+     *
+     * @param tree      tree to check
+     * @param reference expected content
+     * @param random    random generator for the scanned ranges
+     */
+    private static void checkContent(ShardedAvlTree tree, TreeSet<Integer> reference, Random random) {
+        check(tree.size() == reference.size(), "size");
+        Iterator<Integer> expected = reference.iterator();
+        for (int value : tree) {
+            check(expected.hasNext() && (expected.next() == value), "iteration order");
+        }
+        check(!expected.hasNext(), "iteration length");
+        for (int value = -400; value < 400; value++) {
+            check(tree.contains(value) == reference.contains(value), "contains " + value);
+        }
+        check(tree.contains(Integer.MIN_VALUE) == reference.contains(Integer.MIN_VALUE), "contains min");
+        check(tree.contains(Integer.MAX_VALUE) == reference.contains(Integer.MAX_VALUE), "contains max");
+        checkRange(tree, reference, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        checkRange(tree, reference, 5, 4);
+        for (int i = 0; i < 20; i++) {
+            int low = randomValue(random, 800);
+            int high = randomValue(random, 800);
+            checkRange(tree, reference, Math.min(low, high), Math.max(low, high));
+        }
+    }
+
+    /**
+     * checks a range scan against a reference set
+     *
+     * @param tree      tree to check
+     * @param reference expected content
+     * @param low       lowest value of the range
+     * @param high      highest value of the range
+     */
+    private static void checkRange(ShardedAvlTree tree, TreeSet<Integer> reference, int low, int high) {
+        int[] scanned = tree.rangeScan(low, high);
+        if (low > high) {
+            check(scanned.length == 0, "empty range");
+            return;
+        }
+        int index = 0;
+        for (int value : reference.subSet(low, true, high, true)) {
+            check((index < scanned.length) && (scanned[index] == value), "range scan " + low + ".." + high);
+            index++;
+        }
+        check(index == scanned.length, "range scan length " + low + ".." + high);
+    }
+
+    /**
+     * threads changing and scanning the same keys concurrently leave every key present iff the successful adds of
+     * it outnumber its successful deletes, and range scans stay sorted and inside their ranges meanwhile.
+     *
+     * @throws InterruptedException if interrupted while waiting for the worker threads
+     */
+    private static void concurrentChangesKeepNetCounts() throws InterruptedException {
+        final ShardedAvlTree tree = new ShardedAvlTree(2, 8);
+        final int[][] netCounts = new int[THREADS][CONCURRENT_KEYS];
+        final Throwable[] failures = new Throwable[THREADS];
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final int id = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Random random = new Random(id);
+                        for (int i = 0; i < CONCURRENT_OPERATIONS; i++) {
+                            int value = random.nextInt(CONCURRENT_KEYS);
+                            int operation = random.nextInt(10);
+                            if (operation < 4) {
+                                if (tree.add(value)) {
+                                    netCounts[id][value]++;
+                                }
+                            } else if (operation < 8) {
+                                if (tree.delete(value)) {
+                                    netCounts[id][value]--;
+                                }
+                            } else if (operation == 8) {
+                                tree.contains(value);
+                            } else {
+                                checkScan(tree.rangeScan(value, value + 64), value, value + 64);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failures[id] = e;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (Throwable failure : failures) {
+            if (failure != null) {
+                throw new AssertionError("worker failed", failure);
+            }
+        }
+        TreeSet<Integer> expected = new TreeSet<Integer>();
+        for (int value = 0; value < CONCURRENT_KEYS; value++) {
+            int net = 0;
+            for (int[] threadCounts : netCounts) {
+                net += threadCounts[value];
+            }
+            check((net == 0) || (net == 1), "net count of " + value);
+            check(tree.contains(value) == (net == 1), "contains " + value);
+            if (net == 1) {
+                expected.add(value);
+            }
+        }
+        checkContent(tree, expected, new Random(0));
+    }
+
+    /**
+     * @param scanned result of a range scan
+     * @param low     lowest value of the range
+     * @param high    highest value of the range
+     */
+    private static void checkScan(int[] scanned, int low, int high) {
+        for (int i = 0; i < scanned.length; i++) {
+            check((low <= scanned[i]) && (scanned[i] <= high), "scanned value in range");
+            check((i == 0) || (scanned[i - 1] < scanned[i]), "scan is sorted");
+        }
+    }
+
+    /**
+     * @param condition condition that should hold
+     * @param message   description of the check
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+}